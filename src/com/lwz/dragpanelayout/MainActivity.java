@@ -10,7 +10,6 @@ import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.view.View.OnClickListener;
 import android.widget.Button;
 import android.widget.ListView;
 import android.widget.SimpleAdapter;
@@ -20,11 +19,15 @@ import android.widget.Toast;
 
 import com.lwz.dragpanelayout.view.DragPaneLayout;
 import com.lwz.dragpanelayout.view.DragPaneLayout.Mode;
+import com.lwz.dragpanelayout.view.DragPaneLayout.OnSwipeActionClickListener;
+import com.lwz.dragpanelayout.view.DragPaneWarmUp;
+import com.lwz.dragpanelayout.view.SwipeAction;
 import com.lwz.dragpanelayout.view.TransformationDragPaneLayout;
 
 public class MainActivity extends ListActivity {
 
 	TransformationDragPaneLayout mDragPaneLayout;
+	DragPaneWarmUp mDragPaneWarmUp;
 	
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
@@ -41,6 +44,16 @@ public class MainActivity extends ListActivity {
 			map.put("text", "item " + i);
 			data.add(map);
 		}
+		// 列表的每一行共用同一个操作，由 DragPaneLayout 直接绘制
+		final SwipeAction bottomAction = new SwipeAction(0, 0xFFFF0000, null, "Bottom");
+		bottomAction.setWidth((int) (100 * getResources().getDisplayMetrics().density));
+		final OnSwipeActionClickListener onSwipeActionClickListener = new OnSwipeActionClickListener() {
+			
+			@Override
+			public void onSwipeActionClick(DragPaneLayout layout, SwipeAction action) {
+				layout.closePane();
+			}
+		};
 		SimpleAdapter adapter = new SimpleAdapter(this, data, 
 				R.layout.item_swipe, new String[]{"text"}, new int[]{R.id.drag_pane_layout});
 		adapter.setViewBinder(new ViewBinder() {
@@ -53,18 +66,25 @@ public class MainActivity extends ListActivity {
 				TextView text;
 				(text = (TextView)paneLayout.findViewById(R.id.text)).setText(textRepresentation);
 				paneLayout.setDragPane(text);
-				paneLayout.findViewById(R.id.botton).setOnClickListener(new OnClickListener() {
-					
-					@Override
-					public void onClick(View v) {
-						paneLayout.closePane();
-					}
-				});
+				paneLayout.setRightSwipeActions(bottomAction);
+				paneLayout.setOnSwipeActionClickListener(onSwipeActionClickListener);
 				return true;
 			}
 		});
 		setListAdapter(adapter);
-		
+		mDragPaneWarmUp = new DragPaneWarmUp(getListView());
+	}
+	
+	@Override
+	protected void onResume() {
+		super.onResume();
+		mDragPaneWarmUp.attach();
+	}
+	
+	@Override
+	protected void onPause() {
+		super.onPause();
+		mDragPaneWarmUp.detach();
 	}
 	
 	@Override
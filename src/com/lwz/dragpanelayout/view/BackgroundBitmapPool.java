@@ -0,0 +1,83 @@
+/* Copyright 2015 Liu Wenzhu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lwz.dragpanelayout.view;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+/**
+ * 按尺寸复用背景缓存的 Bitmap，超过容量时回收最久没有使用的 Bitmap。
+ * 只能在主线程使用
+ * @author Liu Wenzhu<lwz0316@gmail.com>
+ */
+final class BackgroundBitmapPool {
+	
+	/** 背景缓存通常是全屏大小，只保留少量 */
+	private static final int MAX_SIZE = 2;
+	
+	private static final LinkedHashMap<Long, Bitmap> sPool = new LinkedHashMap<Long, Bitmap>(MAX_SIZE + 1, 0.75f, true);
+	
+	private BackgroundBitmapPool() {
+	}
+	
+	/**
+	 * 获取指定尺寸的透明 Bitmap，优先复用池中的 Bitmap
+	 */
+	static Bitmap acquire(int width, int height) {
+		Bitmap bitmap = sPool.remove(key(width, height));
+		if( bitmap != null ) {
+			bitmap.eraseColor(Color.TRANSPARENT);
+			return bitmap;
+		}
+		return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+	}
+	
+	/**
+	 * 归还不再使用的 Bitmap
+	 */
+	static void release(Bitmap bitmap) {
+		if( bitmap == null || bitmap.isRecycled() ) {
+			return;
+		}
+		Bitmap previous = sPool.put(key(bitmap.getWidth(), bitmap.getHeight()), bitmap);
+		if( previous != null && previous != bitmap ) {
+			previous.recycle();
+		}
+		Iterator<Map.Entry<Long, Bitmap>> it = sPool.entrySet().iterator();
+		while( sPool.size() > MAX_SIZE && it.hasNext() ) {
+			it.next().getValue().recycle();
+			it.remove();
+		}
+	}
+	
+	/**
+	 * 回收池中所有的 Bitmap
+	 */
+	static void clear() {
+		for( Bitmap bitmap : sPool.values() ) {
+			bitmap.recycle();
+		}
+		sPool.clear();
+	}
+	
+	private static Long key(int width, int height) {
+		return ((long) width << 32) | (height & 0xFFFFFFFFL);
+	}
+	
+}
@@ -0,0 +1,126 @@
+/* Copyright 2015 Liu Wenzhu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lwz.dragpanelayout.view;
+
+import java.util.WeakHashMap;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.View;
+
+/**
+ * 同一个窗口中所有正在滑动的 {@link DragPaneLayout} 共用的动画时钟。
+ * 每一帧只注册一个 {@link Choreographer} 回调，依次推进所有布局的滑动，
+ * 避免每个布局各自通过 computeScroll() 和 postInvalidateOnAnimation() 驱动。
+ * 只能在主线程使用，需要 API 16 以上
+ * @author Liu Wenzhu<lwz0316@gmail.com>
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+final class DragPaneAnimationClock implements Choreographer.FrameCallback {
+	
+	/** 以窗口的根 View 区分不同的窗口 */
+	private static final WeakHashMap<View, DragPaneAnimationClock> sClocks = 
+			new WeakHashMap<View, DragPaneAnimationClock>();
+	
+	private DragPaneLayout[] mLayouts = new DragPaneLayout[4];
+	private int mCount;
+	private boolean mFrameScheduled;
+	
+	private DragPaneAnimationClock() {
+	}
+	
+	/**
+	 * 获取 view 所在窗口的时钟
+	 * @param view 已经 attach 到窗口的 View
+	 */
+	static DragPaneAnimationClock get(View view) {
+		View root = view.getRootView();
+		DragPaneAnimationClock clock = sClocks.get(root);
+		if( clock == null ) {
+			clock = new DragPaneAnimationClock();
+			sClocks.put(root, clock);
+		}
+		return clock;
+	}
+	
+	/**
+	 * 开始在每一帧推进 layout 的滑动
+	 */
+	void register(DragPaneLayout layout) {
+		for( int i=0; i<mCount; i++ ) {
+			if( mLayouts[i] == layout ) {
+				return;
+			}
+		}
+		if( mCount == mLayouts.length ) {
+			DragPaneLayout[] layouts = new DragPaneLayout[mCount << 1];
+			System.arraycopy(mLayouts, 0, layouts, 0, mCount);
+			mLayouts = layouts;
+		}
+		mLayouts[mCount++] = layout;
+		if( !mFrameScheduled ) {
+			mFrameScheduled = true;
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+	}
+	
+	/**
+	 * 停止推进 layout 的滑动，可以在 {@link #doFrame(long)} 过程中调用
+	 */
+	void unregister(DragPaneLayout layout) {
+		for( int i=0; i<mCount; i++ ) {
+			if( mLayouts[i] == layout ) {
+				// 只清空位置，在 doFrame() 结束时统一压缩
+				mLayouts[i] = null;
+				return;
+			}
+		}
+	}
+	
+	@Override
+	public void doFrame(long frameTimeNanos) {
+		mFrameScheduled = false;
+		// 回调中新注册的布局从下一帧开始推进。
+		// 回调中 register() 可能重新分配数组，所以每次都通过 mLayouts 访问
+		final int count = mCount;
+		for( int i=0; i<count; i++ ) {
+			DragPaneLayout layout = mLayouts[i];
+			if( layout != null && !layout.stepSettle() ) {
+				mLayouts[i] = null;
+			}
+		}
+		compact();
+		// 回调中 register() 可能已经注册了下一帧
+		if( mCount > 0 && !mFrameScheduled ) {
+			mFrameScheduled = true;
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+	}
+	
+	private void compact() {
+		int j = 0;
+		for( int i=0; i<mCount; i++ ) {
+			if( mLayouts[i] != null ) {
+				mLayouts[j++] = mLayouts[i];
+			}
+		}
+		for( int i=j; i<mCount; i++ ) {
+			mLayouts[i] = null;
+		}
+		mCount = j;
+	}
+	
+}
@@ -15,21 +15,43 @@
 package com.lwz.dragpanelayout.view;
 
 import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.support.v4.view.GestureDetectorCompat;
 import android.support.v4.view.MotionEventCompat;
 import android.support.v4.view.ViewCompat;
 import android.support.v4.view.ViewGroupCompat;
 import android.support.v4.widget.ViewDragHelper;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
 import android.util.AttributeSet;
+import android.util.TypedValue;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
 import android.view.View;
 import android.widget.FrameLayout;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.nineoldandroids.view.ViewHelper;
+import com.nineoldandroids.view.animation.AnimatorProxy;
+
 /**
  * 可拖动的容器布局
  * @author Liu Wenzhu<lwz0316@gmail.com>
@@ -72,6 +94,82 @@ public class DragPaneLayout extends FrameLayout {
 		
 	}
 	
+	public static interface OnSwipeActionClickListener {
+		/**
+		 * 点击了绘制在露出区域上的操作
+		 * @param layout 被点击的布局
+		 * @param action 被点击的操作
+		 */
+		public void onSwipeActionClick(DragPaneLayout layout, SwipeAction action);
+	}
+	
+	/**
+	 * 解析 {@link DragPaneLayout#getStateSnapshot()} 返回的状态快照，可以在任意线程使用。
+	 * <p>
+	 * 快照是一个 long：低 32 位为 offset 的 float 位，之后依次为 mode(2 位)、
+	 * 打开的方向(2 位)、是否正在拖动或滑动(1 位)，最高的 27 位为序号，每次状态改变时加 1
+	 */
+	public static final class StateSnapshot {
+		/** 关闭状态 */
+		public static final int OPEN_SIDE_NONE = 0;
+		/** PaneView 向右移动，露出左侧 */
+		public static final int OPEN_SIDE_LEFT = 1;
+		/** PaneView 向左移动，露出右侧 */
+		public static final int OPEN_SIDE_RIGHT = 2;
+		
+		private static final int MODE_SHIFT = 32;
+		private static final int OPEN_SIDE_SHIFT = 34;
+		private static final int MOVING_SHIFT = 36;
+		private static final int SEQUENCE_SHIFT = 37;
+		private static final long SEQUENCE_MASK = (1L << (64 - SEQUENCE_SHIFT)) - 1;
+		private static final Mode[] MODES = Mode.values();
+		
+		private StateSnapshot() {
+		}
+		
+		/**
+		 * @return 拖动偏移量，参见 {@link OnPaneStateChangedListener#onPaneDragged(Mode, float)}
+		 */
+		public static float getOffset(long snapshot) {
+			return Float.intBitsToFloat((int) snapshot);
+		}
+		
+		public static Mode getMode(long snapshot) {
+			return MODES[(int) (snapshot >>> MODE_SHIFT) & 0x3];
+		}
+		
+		/**
+		 * @return {@link #OPEN_SIDE_NONE}, {@link #OPEN_SIDE_LEFT} 或 {@link #OPEN_SIDE_RIGHT}
+		 */
+		public static int getOpenSide(long snapshot) {
+			return (int) (snapshot >>> OPEN_SIDE_SHIFT) & 0x3;
+		}
+		
+		/**
+		 * @return true 正在拖动或者滑动
+		 */
+		public static boolean isMoving(long snapshot) {
+			return ((snapshot >>> MOVING_SHIFT) & 0x1) != 0;
+		}
+		
+		/**
+		 * @return 序号，用于判断两次采样之间状态是否改变
+		 */
+		public static int getSequence(long snapshot) {
+			return (int) (snapshot >>> SEQUENCE_SHIFT);
+		}
+		
+		static long pack(Mode mode, float offset, boolean moving, long previous) {
+			int openSide = offset > 0 ? OPEN_SIDE_LEFT : (offset < 0 ? OPEN_SIDE_RIGHT : OPEN_SIDE_NONE);
+			long sequence = ((previous >>> SEQUENCE_SHIFT) + 1) & SEQUENCE_MASK;
+			return (Float.floatToRawIntBits(offset) & 0xFFFFFFFFL)
+					| ((long) mode.ordinal() << MODE_SHIFT)
+					| ((long) openSide << OPEN_SIDE_SHIFT)
+					| ((moving ? 1L : 0L) << MOVING_SHIFT)
+					| (sequence << SEQUENCE_SHIFT);
+		}
+	}
+	
 	public class OnSimplePanelStateChangedListener implements OnPaneStateChangedListener {
 
 		@Override public void onPaneClosed() {
@@ -98,6 +196,9 @@ public class DragPaneLayout extends FrameLayout {
      */
     private static final int MIN_FLING_VELOCITY = 400; // dips per second
     
+    private static final int SWIPE_ACTION_PADDING = 8; // dips
+    private static final int SWIPE_ACTION_TEXT_SIZE = 14; // sp
+    
 	private ViewDragHelper mDragHelper;
 	private ViewDragCallback mViewDragCallback;
 	private View mDragPane;
@@ -107,7 +208,31 @@ public class DragPaneLayout extends FrameLayout {
 	final float mDensity;
 	/** 拖动是否可以开启 */
 	private boolean mDragOpenable = true;
-	Rect mDragViewVisibleBounds = new Rect();
+	/** PaneView 变换矩阵的逆矩阵，用于把触摸点映射到 PaneView 的坐标系 */
+	private final Matrix mDragPaneMatrix = new Matrix();
+	private final Matrix mDragPaneInverseMatrix = new Matrix();
+	private final float[] mHitTestPoint = new float[2];
+	/** PaneView 的位置或变换改变后需要重新计算 {@link #mDragPaneInverseMatrix} */
+	private boolean mDragPaneMatrixDirty = true;
+	private boolean mDragPaneInvertible;
+	
+	/** 只在主线程写入，任意线程都可以读取，参见 {@link StateSnapshot} */
+	private final AtomicLong mStateSnapshot = new AtomicLong();
+	private final AtomicInteger mDragCount = new AtomicInteger();
+	private final AtomicInteger mOpenCount = new AtomicInteger();
+	private final AtomicInteger mCloseCount = new AtomicInteger();
+	
+	/** 上一次重绘时 PaneView 变换后的范围，和当前范围合并后就是需要重绘的区域 */
+	private final Rect mLastDragPaneBounds = new Rect();
+	private final Rect mDirtyRect = new Rect();
+	private final Matrix mTmpMatrix = new Matrix();
+	private final RectF mTmpRectF = new RectF();
+	/** 拖动所需的资源是否已经预热, 参见 {@link #warmUp()} */
+	boolean mWarmedUp;
+	/** 手指是否按在本布局上，从 ACTION_DOWN 开始到 ACTION_UP/ACTION_CANCEL 结束 */
+	private boolean mInGesture;
+	/** 内存不足时已经释放了资源，下次触摸之前不再预热，参见 {@link #trimMemory(int)} */
+	private boolean mTrimmed;
 	
 	/**
      * Stores whether or not the pane was open the last time it was slideable.
@@ -119,9 +244,28 @@ public class DragPaneLayout extends FrameLayout {
     private boolean mFirstLayout = true;
     private int mLeftOffset;
 	private int mTopOffset;
+	/** 正在由这个时钟推进滑动，参见 {@link #startSettling()} */
+	private DragPaneAnimationClock mAnimationClock;
     
     private GestureDetectorCompat mGestureDetector;
     
+    /** 达到这个内存级别时释放可以重建的资源，参见 {@link #setTrimMemoryLevel(int)} */
+    private int mTrimMemoryLevel = ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+    /** API 14 以上才会创建，类型为 {@link TrimMemoryCallbacks} */
+    private Object mTrimMemoryCallbacks;
+    
+    /** 直接绘制的操作，参见 {@link SwipeAction} */
+    private SwipeAction[] mLeftSwipeActions;
+    private SwipeAction[] mRightSwipeActions;
+    private Rect[] mLeftSwipeActionBounds;
+    private Rect[] mRightSwipeActionBounds;
+    /** 预先计算好的文字布局，和操作一一对应，宽度或画笔改变时才重新创建 */
+    private StaticLayout[] mLeftSwipeActionLabels;
+    private StaticLayout[] mRightSwipeActionLabels;
+    private Paint mSwipeActionPaint;
+    private TextPaint mSwipeActionTextPaint;
+    private OnSwipeActionClickListener mSwipeActionClickListener;
+    
     private OnPaneStateChangedListener mPaneStateChangedListener;
     private OnPaneStateChangedListener mPaneStateChangedProxy = new OnPaneStateChangedListener() {
 		
@@ -161,8 +305,7 @@ public class DragPaneLayout extends FrameLayout {
 		mDensity = context.getResources().getDisplayMetrics().density;
 		
 		mViewDragCallback = new ViewDragCallback();
-		mDragHelper = ViewDragHelper.create(this, TOUCH_SLOP_SENSITIVITY, mViewDragCallback);
-		mDragHelper.setMinVelocity(MIN_FLING_VELOCITY * mDensity);
+		publishStateSnapshot();
 		
 		ViewCompat.setImportantForAccessibility(this,
                 ViewCompat.IMPORTANT_FOR_ACCESSIBILITY_NO);
@@ -171,8 +314,24 @@ public class DragPaneLayout extends FrameLayout {
         setFocusableInTouchMode(true);
         setClickable(true);
         ViewGroupCompat.setMotionEventSplittingEnabled(this, false);
-        
-        mGestureDetector = new GestureDetectorCompat(context, mGestureListener);
+	}
+	
+	/**
+	 * ViewDragHelper 在内存不足时会被释放，使用时再重新创建
+	 */
+	private ViewDragHelper getDragHelper() {
+		if( mDragHelper == null ) {
+			mDragHelper = ViewDragHelper.create(this, TOUCH_SLOP_SENSITIVITY, mViewDragCallback);
+			mDragHelper.setMinVelocity(MIN_FLING_VELOCITY * mDensity);
+		}
+		return mDragHelper;
+	}
+	
+	private GestureDetectorCompat getGestureDetector() {
+		if( mGestureDetector == null ) {
+			mGestureDetector = new GestureDetectorCompat(getContext(), mGestureListener);
+		}
+		return mGestureDetector;
 	}
 	
 	private GestureDetector.OnGestureListener mGestureListener = new GestureDetector.SimpleOnGestureListener() {
@@ -190,6 +349,11 @@ public class DragPaneLayout extends FrameLayout {
 		public boolean onDown(MotionEvent e) {
 			return true;
 		}
+		
+		@Override
+		public boolean onSingleTapUp(MotionEvent e) {
+			return performSwipeActionClick(e.getX(), e.getY());
+		}
     	
     };
 	
@@ -197,18 +361,29 @@ public class DragPaneLayout extends FrameLayout {
 	protected void onAttachedToWindow() {
 		super.onAttachedToWindow();
 		mFirstLayout = true;
+		if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH ) {
+			registerTrimMemoryCallbacks();
+		}
 	}
 	
 	@Override
 	protected void onDetachedFromWindow() {
 		super.onDetachedFromWindow();
 		mFirstLayout = true;
+		mWarmedUp = false;
+		mInGesture = false;
+		stopSettlingOnClock();
+		if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH ) {
+			unregisterTrimMemoryCallbacks();
+		}
 	}
 	
 	@Override
 	protected void onLayout(boolean changed, int left, int top, int right,
 			int bottom) {
 		super.onLayout(changed, left, top, right, bottom);
+		invalidateDragPaneTransform();
+		layoutSwipeActions();
 		if( mFirstLayout ) {
 			if( mPreservedOpenState ) {
 				openPane();
@@ -231,6 +406,18 @@ public class DragPaneLayout extends FrameLayout {
         }
     }
 	
+	@Override
+	public boolean dispatchTouchEvent(MotionEvent ev) {
+		int action = MotionEventCompat.getActionMasked(ev);
+		if( action == MotionEvent.ACTION_DOWN ) {
+			mInGesture = true;
+			mTrimmed = false;
+		} else if( action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL ) {
+			mInGesture = false;
+		}
+		return super.dispatchTouchEvent(ev);
+	}
+	
 	@Override
 	public boolean onInterceptTouchEvent(MotionEvent ev) {
 		if( !mDragOpenable && isClosed()) {
@@ -239,10 +426,10 @@ public class DragPaneLayout extends FrameLayout {
 		int action = MotionEventCompat.getActionMasked(ev);
 		if( action == MotionEvent.ACTION_CANCEL
 				|| action == MotionEvent.ACTION_UP) {
-			mDragHelper.cancel();
+			getDragHelper().cancel();
 			return false;
 		}
-		return mDragHelper.shouldInterceptTouchEvent(ev) 
+		return getDragHelper().shouldInterceptTouchEvent(ev) 
 				|| shouldInterceptDragPaneTouchEvent(ev); 
 	}
 	
@@ -255,12 +442,63 @@ public class DragPaneLayout extends FrameLayout {
 	private boolean shouldInterceptDragPaneTouchEvent(MotionEvent ev) {
 		// 非关闭状态，那么就不允许DragView 获取焦点
 		if( !isClosed() ) {
-			mDragViewVisibleBounds.set(mDragPane.getLeft(), mDragPane.getTop(), mDragPane.getRight(), mDragPane.getBottom());
-			return mDragViewVisibleBounds.contains((int)ev.getX(), (int)ev.getY());
+			return isPointInDragPane(ev.getX(), ev.getY());
 		}
 		return false;
 	}
 	
+	/**
+	 * 判断触摸点是否落在 PaneView 上，考虑了 PaneView 当前的缩放、平移等变换
+	 * @param x 本布局坐标系中的 x
+	 * @param y 本布局坐标系中的 y
+	 * @return true 在 PaneView 上
+	 */
+	boolean isPointInDragPane(float x, float y) {
+		if( mDragPane == null ) {
+			return false;
+		}
+		if( mDragPaneMatrixDirty ) {
+			getDragPaneMatrix(mDragPane, mDragPaneMatrix);
+			mDragPaneInvertible = mDragPaneMatrix.invert(mDragPaneInverseMatrix);
+			mDragPaneMatrixDirty = false;
+		}
+		if( !mDragPaneInvertible ) {
+			return false;
+		}
+		final float[] point = mHitTestPoint;
+		point[0] = x;
+		point[1] = y;
+		mDragPaneInverseMatrix.mapPoints(point);
+		return point[0] >= 0 && point[0] < mDragPane.getWidth()
+				&& point[1] >= 0 && point[1] < mDragPane.getHeight();
+	}
+	
+	/**
+	 * 计算 child 从自身坐标系到本布局坐标系的变换矩阵
+	 * @param child 子 View
+	 * @param outMatrix 结果
+	 */
+	static void getDragPaneMatrix(View child, Matrix outMatrix) {
+		float pivotX = ViewHelper.getPivotX(child);
+		float pivotY = ViewHelper.getPivotY(child);
+		if( AnimatorProxy.NEEDS_PROXY && pivotX == 0 && pivotY == 0 ) {
+			// API 11 以下 AnimatorProxy 没有设置过中心点时返回 0，但实际以 View 的中心缩放
+			pivotX = child.getWidth() / 2f;
+			pivotY = child.getHeight() / 2f;
+		}
+		outMatrix.setScale(ViewHelper.getScaleX(child), ViewHelper.getScaleY(child), pivotX, pivotY);
+		outMatrix.postTranslate(child.getLeft() + ViewHelper.getTranslationX(child),
+				child.getTop() + ViewHelper.getTranslationY(child));
+	}
+	
+	/**
+	 * PaneView 的位置或者变换改变后调用，使触摸检测重新计算 PaneView 的范围。
+	 * 拖动过程中会自动调用，子类在拖动之外修改 PaneView 的变换时需要手动调用
+	 */
+	protected void invalidateDragPaneTransform() {
+		mDragPaneMatrixDirty = true;
+	}
+	
 	@SuppressLint("ClickableViewAccessibility")
 	@Override
 	public boolean onTouchEvent(MotionEvent event) {
@@ -268,8 +506,8 @@ public class DragPaneLayout extends FrameLayout {
 			return super.onTouchEvent(event);
 		}
 //		requestDisallowInterceptTouchEvent(true);
-		mGestureDetector.onTouchEvent(event);
-		mDragHelper.processTouchEvent(event);
+		getGestureDetector().onTouchEvent(event);
+		getDragHelper().processTouchEvent(event);
 		return true;
 	}
 	
@@ -287,9 +525,13 @@ public class DragPaneLayout extends FrameLayout {
 	 * @param view pane view
 	 */
 	public void setDragPane(View view) {
-		mDragHelper.abort();
+		if( mDragHelper != null ) {
+			mDragHelper.abort();
+		}
 		if( mDragPane != view ) {
 			mDragPane = view;
+			mWarmedUp = false;
+			invalidateDragPaneTransform();
 		}
 	}
 	
@@ -301,6 +543,7 @@ public class DragPaneLayout extends FrameLayout {
 		if( mDragRange != dragRange ) {
 			closePane();
 			mDragRange = dragRange;
+			layoutSwipeActions();
 		}
 	}
 	
@@ -312,17 +555,119 @@ public class DragPaneLayout extends FrameLayout {
 		return mDragRange;
 	}
 	
+	/**
+	 * 预热拖动所需的资源，避免第一次触摸拖动时的卡顿。
+	 * 适合在列表空闲或预取(prefetch)时调用，参见 {@link DragPaneWarmUp}
+	 * @return true 本次执行了预热, false 已经预热过、内存不足时释放过资源并且还没有被触摸，
+	 * 或者 PaneView 尚未准备好
+	 */
+	public boolean warmUp() {
+		if( mWarmedUp || mInGesture || mTrimmed || mDragPane == null || mDragRange == 0 ) {
+			return false;
+		}
+		primeDragHelper();
+		getGestureDetector();
+		onWarmUp();
+		mWarmedUp = true;
+		return true;
+	}
+	
+	/**
+	 * 在布局外发送一次 ACTION_DOWN，使 ViewDragHelper 提前创建记录触摸位置的数组。
+	 * cancel() 只清空这些数组，不会释放
+	 */
+	private void primeDragHelper() {
+		final ViewDragHelper helper = getDragHelper();
+		if( helper.getViewDragState() != ViewDragHelper.STATE_IDLE ) {
+			return;
+		}
+		final long now = SystemClock.uptimeMillis();
+		MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, -1, -1, 0);
+		helper.shouldInterceptTouchEvent(down);
+		helper.cancel();
+		down.recycle();
+	}
+	
+	/**
+	 * 预热时回调，子类可以在这里提前准备变换和测量所需的资源
+	 */
+	protected void onWarmUp() {
+	}
+	
+	/**
+	 * 获取 PaneView 当前的拖动偏移量
+	 * @return offset 取值范围参见 {@link OnPaneStateChangedListener#onPaneDragged(Mode, float)}
+	 */
+	public float getDragOffset() {
+		return mDragOffset;
+	}
+	
+	/**
+	 * 获取 PaneView 的开启模式
+	 * @return {@link Mode}
+	 */
+	public Mode getMode() {
+		return mMode;
+	}
+	
 	@Override
 	public void computeScroll() {
-		if( mDragHelper.continueSettling(true) ) {
-			ViewCompat.postInvalidateOnAnimation(this);
+		if( mAnimationClock != null ) {
+			// 由 DragPaneAnimationClock 推进
+			return;
+		}
+		if( mDragHelper != null && mDragHelper.continueSettling(true) ) {
+			postInvalidateDragFrame();
 		} else {
-			// 记录当前位移状态，保证调用 onLayout() 方法时保持当前位置不动
-			mLeftOffset = mDragPane.getLeft();
-			mTopOffset = mDragPane.getTop();
+			recordDragPaneOffset();
 		}
 	}
 	
+	/**
+	 * 记录当前位移状态，保证调用 onLayout() 方法时保持当前位置不动
+	 */
+	private void recordDragPaneOffset() {
+		mLeftOffset = mDragPane.getLeft();
+		mTopOffset = mDragPane.getTop();
+	}
+	
+	/**
+	 * 开始滑动。API 16 以上由窗口共用的 {@link DragPaneAnimationClock} 推进，
+	 * 多个布局同时滑动时每帧只需要一次回调；否则通过 {@link #computeScroll()} 推进
+	 */
+	private void startSettling() {
+		if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN && getWindowToken() != null ) {
+			if( mAnimationClock == null ) {
+				mAnimationClock = DragPaneAnimationClock.get(this);
+				mAnimationClock.register(this);
+			}
+		} else {
+			postInvalidateDragFrame();
+		}
+	}
+	
+	private void stopSettlingOnClock() {
+		if( mAnimationClock != null ) {
+			mAnimationClock.unregister(this);
+			mAnimationClock = null;
+		}
+	}
+	
+	/**
+	 * 由 {@link DragPaneAnimationClock} 在每一帧调用。
+	 * PaneView 移动时会自己请求重绘，这里不需要再 invalidate
+	 * @return true 还在滑动, false 滑动结束
+	 */
+	boolean stepSettle() {
+		if( mDragHelper != null && mDragHelper.continueSettling(false) ) {
+			return true;
+		}
+		// 滑动结束时 onViewDragStateChanged() 已经注销
+		mAnimationClock = null;
+		recordDragPaneOffset();
+		return false;
+	}
+	
 	/**
      * Smoothly animate mDraggingPane to the target X position within its range.
      *
@@ -332,15 +677,67 @@ public class DragPaneLayout extends FrameLayout {
     boolean smoothSlideTo(float slideOffset, int velocity) {
         int startBound = 0;
         int x = (int) (startBound + slideOffset * mDragRange);
-        if (mDragHelper.smoothSlideViewTo(mDragPane, x, mDragPane.getTop())) {
-            ViewCompat.postInvalidateOnAnimation(this);
+        if (getDragHelper().smoothSlideViewTo(mDragPane, x, mDragPane.getTop())) {
+            startSettling();
             return true;
         }
         return false;
     }
     
+    /**
+     * 请求下一帧重绘。软件绘制时只重绘拖动影响到的区域，
+     * 当子类的效果覆盖整个布局时才重绘整个布局。
+     * 硬件加速时重绘区域不会减少绘制的工作量，直接重绘整个布局
+     */
+    private void postInvalidateDragFrame() {
+    	if( isSoftwareRendered() && getDragFrameDirtyRect(mDirtyRect) ) {
+    		ViewCompat.postInvalidateOnAnimation(this, 
+    				mDirtyRect.left, mDirtyRect.top, mDirtyRect.right, mDirtyRect.bottom);
+    	} else {
+    		ViewCompat.postInvalidateOnAnimation(this);
+    	}
+    }
+    
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private boolean isSoftwareRendered() {
+    	if( Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB ) {
+    		return true;
+    	}
+    	return !isHardwareAccelerated() || getLayerType() == LAYER_TYPE_SOFTWARE;
+    }
+    
+    /**
+     * 计算拖动一帧需要重绘的区域，默认为 PaneView 上一帧和当前帧范围的并集，
+     * 其中包含了新露出的底部区域
+     * @param outDirty 需要重绘的区域
+     * @return true 只需要重绘 outDirty, false 需要重绘整个布局
+     */
+    protected boolean getDragFrameDirtyRect(Rect outDirty) {
+    	if( mDragPane == null ) {
+    		return false;
+    	}
+    	outDirty.set(mLastDragPaneBounds);
+    	getTransformedBounds(mDragPane, mLastDragPaneBounds);
+    	outDirty.union(mLastDragPaneBounds);
+    	return !outDirty.isEmpty();
+    }
+    
+    /**
+     * 获取 child 经过缩放、平移等变换后在本布局中的范围
+     * @param child 子 View
+     * @param outBounds 结果
+     */
+    protected void getTransformedBounds(View child, Rect outBounds) {
+    	getDragPaneMatrix(child, mTmpMatrix);
+    	mTmpRectF.set(0, 0, child.getWidth(), child.getHeight());
+    	mTmpMatrix.mapRect(mTmpRectF);
+    	mTmpRectF.roundOut(outBounds);
+    }
+    
     private void onPaneDragged(int newLeft) {
     	mDragOffset = (float) (newLeft) / mDragRange;
+    	invalidateDragPaneTransform();
+    	publishStateSnapshot();
         mPaneStateChangedProxy.onPaneDragged(mMode, mDragOffset);
     }
     
@@ -396,9 +793,44 @@ public class DragPaneLayout extends FrameLayout {
     			closePane();
     		}
     		mMode = mode;
+    		publishStateSnapshot();
     	}
     }
     
+    /**
+     * 获取当前状态的快照，可以在任意线程调用，不需要切换到主线程
+     * @return 使用 {@link StateSnapshot} 解析
+     */
+    public long getStateSnapshot() {
+    	return mStateSnapshot.get();
+    }
+    
+    /**
+     * 累计开始拖动的次数，可以在任意线程调用
+     */
+    public int getDragCount() {
+    	return mDragCount.get();
+    }
+    
+    /**
+     * 累计从关闭切换到打开的次数，可以在任意线程调用
+     */
+    public int getOpenCount() {
+    	return mOpenCount.get();
+    }
+    
+    /**
+     * 累计从打开切换到关闭的次数，可以在任意线程调用
+     */
+    public int getCloseCount() {
+    	return mCloseCount.get();
+    }
+    
+    private void publishStateSnapshot() {
+    	boolean moving = mDragHelper != null && mDragHelper.getViewDragState() != ViewDragHelper.STATE_IDLE;
+    	mStateSnapshot.set(StateSnapshot.pack(mMode, mDragOffset, moving, mStateSnapshot.get()));
+    }
+    
     /**
      * 设置 PaneView 是否允许被拖动打开
      * @param openable true 允许拖动打开; false 不允许拖动打开，但是可以通过 {@link #openPane()} 方法打开 
@@ -488,20 +920,38 @@ public class DragPaneLayout extends FrameLayout {
 		            }
 	            }
 			}
-			mDragHelper.settleCapturedViewAt(finalLeft, releasedChild.getTop());
+			getDragHelper().settleCapturedViewAt(finalLeft, releasedChild.getTop());
 			// don't forget this
 			// 不加这句话就没有还原的效果
-			invalidate();
+			startSettling();
 		}
 		
 		@Override
 		public void onViewDragStateChanged(int state) {
 			super.onViewDragStateChanged(state);
+			if( ViewDragHelper.STATE_IDLE != state ) {
+				// 内存不足时释放过的文字布局在露出之前重新计算
+				buildSwipeActionLabels();
+			}
+			if( ViewDragHelper.STATE_DRAGGING == state ) {
+				mDragCount.incrementAndGet();
+			}
+			if( ViewDragHelper.STATE_SETTLING != state ) {
+				stopSettlingOnClock();
+			}
+			publishStateSnapshot();
 			if( ViewDragHelper.STATE_IDLE == state ) {
+				// 只统计打开和关闭之间的切换，拖动后回到原来的状态不计数
 				if (mDragOffset == 0) {
+					if( mPreservedOpenState ) {
+						mCloseCount.incrementAndGet();
+					}
 			    	mPaneStateChangedProxy.onPaneClosed();
 			    	mPreservedOpenState = false;
 	            } else {
+	            	if( !mPreservedOpenState ) {
+	            		mOpenCount.incrementAndGet();
+	            	}
 			    	mPaneStateChangedProxy.onPaneOpened(mMode, mDragOffset);
 			    	mPreservedOpenState = true;
 	            }
@@ -510,7 +960,345 @@ public class DragPaneLayout extends FrameLayout {
 		
 		@Override
 		public void onEdgeDragStarted(int edgeFlags, int pointerId) {
-			mDragHelper.captureChildView(mDragPane, pointerId);
+			getDragHelper().captureChildView(mDragPane, pointerId);
+		}
+		
+	}
+	
+	/**
+	 * 设置左侧露出区域上直接绘制的操作，代替在 PaneView 后面放置子 View
+	 * @param actions 从左到右排列的操作，不传表示清除
+	 */
+	public void setLeftSwipeActions(SwipeAction... actions) {
+		actions = actions != null && actions.length > 0 ? actions : null;
+		mLeftSwipeActionLabels = createSwipeActionLabels(actions, mLeftSwipeActions, mLeftSwipeActionLabels);
+		mLeftSwipeActions = actions;
+		mLeftSwipeActionBounds = createSwipeActionBounds(mLeftSwipeActions, mLeftSwipeActionBounds);
+		onSwipeActionsChanged();
+	}
+	
+	/**
+	 * 设置右侧露出区域上直接绘制的操作，代替在 PaneView 后面放置子 View
+	 * @param actions 从左到右排列的操作，不传表示清除
+	 */
+	public void setRightSwipeActions(SwipeAction... actions) {
+		actions = actions != null && actions.length > 0 ? actions : null;
+		mRightSwipeActionLabels = createSwipeActionLabels(actions, mRightSwipeActions, mRightSwipeActionLabels);
+		mRightSwipeActions = actions;
+		mRightSwipeActionBounds = createSwipeActionBounds(mRightSwipeActions, mRightSwipeActionBounds);
+		onSwipeActionsChanged();
+	}
+	
+	/**
+	 * 设置操作文字的颜色和大小
+	 * @param color 颜色
+	 * @param textSize 像素
+	 */
+	public void setSwipeActionTextAppearance(int color, float textSize) {
+		mSwipeActionTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+		mSwipeActionTextPaint.setColor(color);
+		mSwipeActionTextPaint.setTextSize(textSize);
+		releaseSwipeActionLabels();
+		buildSwipeActionLabels();
+		invalidate();
+	}
+	
+	/**
+	 * 设置操作点击监听
+	 * @param l
+	 */
+	public void setOnSwipeActionClickListener(OnSwipeActionClickListener l) {
+		mSwipeActionClickListener = l;
+	}
+	
+	private static Rect[] createSwipeActionBounds(SwipeAction[] actions, Rect[] reuse) {
+		if( actions == null ) {
+			return null;
+		}
+		// 列表重新绑定时操作个数通常不变，直接复用
+		if( reuse != null && reuse.length == actions.length ) {
+			return reuse;
+		}
+		Rect[] bounds = new Rect[actions.length];
+		for( int i=0; i<bounds.length; i++ ) {
+			bounds[i] = new Rect();
+		}
+		return bounds;
+	}
+	
+	/**
+	 * 列表重新绑定时通常传入相同的操作，保留对应位置上已经计算好的文字布局
+	 */
+	private static StaticLayout[] createSwipeActionLabels(SwipeAction[] actions, 
+			SwipeAction[] oldActions, StaticLayout[] oldLabels) {
+		if( actions == null ) {
+			return null;
+		}
+		StaticLayout[] labels = new StaticLayout[actions.length];
+		if( oldActions != null && oldLabels != null ) {
+			for( int i=0, size=Math.min(actions.length, oldActions.length); i<size; i++ ) {
+				if( actions[i] == oldActions[i] ) {
+					labels[i] = oldLabels[i];
+				}
+			}
+		}
+		return labels;
+	}
+	
+	private void releaseSwipeActionLabels() {
+		if( mLeftSwipeActionLabels != null ) {
+			Arrays.fill(mLeftSwipeActionLabels, null);
+		}
+		if( mRightSwipeActionLabels != null ) {
+			Arrays.fill(mRightSwipeActionLabels, null);
+		}
+	}
+	
+	private void onSwipeActionsChanged() {
+		if( mSwipeActionPaint == null ) {
+			mSwipeActionPaint = new Paint();
+		}
+		if( mSwipeActionTextPaint == null ) {
+			setSwipeActionTextAppearance(0xFFFFFFFF, TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 
+					SWIPE_ACTION_TEXT_SIZE, getResources().getDisplayMetrics()));
+		}
+		layoutSwipeActions();
+		invalidate();
+	}
+	
+	/**
+	 * 计算操作的位置，左侧的操作从左边缘开始排列，右侧的操作排列到右边缘为止
+	 */
+	private void layoutSwipeActions() {
+		final int height = getHeight();
+		if( mLeftSwipeActions != null ) {
+			int left = 0;
+			for( int i=0; i<mLeftSwipeActions.length; i++ ) {
+				int width = getSwipeActionWidth(mLeftSwipeActions, i);
+				mLeftSwipeActionBounds[i].set(left, 0, left + width, height);
+				left += width;
+			}
+		}
+		if( mRightSwipeActions != null ) {
+			int right = getWidth();
+			for( int i=mRightSwipeActions.length - 1; i>=0; i-- ) {
+				int width = getSwipeActionWidth(mRightSwipeActions, i);
+				mRightSwipeActionBounds[i].set(right - width, 0, right, height);
+				right -= width;
+			}
+		}
+		buildSwipeActionLabels();
+	}
+	
+	/**
+	 * 按操作的宽度预先计算文字布局，绘制时只读取结果。
+	 * 布局、开始拖动或滑动时调用，文字布局已经存在并且宽度不变时直接跳过
+	 */
+	private void buildSwipeActionLabels() {
+		if( mSwipeActionTextPaint == null ) {
+			return;
+		}
+		buildSwipeActionLabels(mLeftSwipeActions, mLeftSwipeActionBounds, mLeftSwipeActionLabels);
+		buildSwipeActionLabels(mRightSwipeActions, mRightSwipeActionBounds, mRightSwipeActionLabels);
+	}
+	
+	private void buildSwipeActionLabels(SwipeAction[] actions, Rect[] bounds, StaticLayout[] labels) {
+		if( actions == null ) {
+			return;
+		}
+		final int padding = (int) (SWIPE_ACTION_PADDING * mDensity);
+		for( int i=0; i<actions.length; i++ ) {
+			final CharSequence text = actions[i].getLabel();
+			final int width = bounds[i].width() - (padding << 1);
+			if( text == null || width <= 0 ) {
+				labels[i] = null;
+			} else if( labels[i] == null || labels[i].getWidth() != width ) {
+				labels[i] = new StaticLayout(text, mSwipeActionTextPaint, width, 
+						Layout.Alignment.ALIGN_CENTER, 1.0f, 0f, false);
+			}
+		}
+	}
+	
+	@Override
+	protected void onWindowVisibilityChanged(int visibility) {
+		super.onWindowVisibilityChanged(visibility);
+		// 不可见时内存不足释放过的文字布局，在重新显示之前计算
+		if( visibility == VISIBLE ) {
+			buildSwipeActionLabels();
+		}
+	}
+	
+	private int getSwipeActionWidth(SwipeAction[] actions, int index) {
+		int width = actions[index].getWidth();
+		return width > 0 ? width : mDragRange / actions.length;
+	}
+	
+	@Override
+	protected void dispatchDraw(Canvas canvas) {
+		// 操作绘制在子 View 下面，由 PaneView 覆盖
+		if( mDragPane != null && !isClosed() ) {
+			if( mDragPane.getLeft() > 0 ) {
+				drawSwipeActions(canvas, mLeftSwipeActions, mLeftSwipeActionBounds, mLeftSwipeActionLabels);
+			} else if( mDragPane.getLeft() < 0 ) {
+				drawSwipeActions(canvas, mRightSwipeActions, mRightSwipeActionBounds, mRightSwipeActionLabels);
+			}
+		}
+		super.dispatchDraw(canvas);
+	}
+	
+	private void drawSwipeActions(Canvas canvas, SwipeAction[] actions, Rect[] bounds, StaticLayout[] labels) {
+		if( actions == null ) {
+			return;
+		}
+		final int padding = (int) (SWIPE_ACTION_PADDING * mDensity);
+		for( int i=0; i<actions.length; i++ ) {
+			final SwipeAction action = actions[i];
+			final Rect rect = bounds[i];
+			mSwipeActionPaint.setColor(action.getBackgroundColor());
+			canvas.drawRect(rect, mSwipeActionPaint);
+			
+			final Drawable icon = action.getIcon();
+			final StaticLayout label = labels[i];
+			final int iconHeight = icon != null ? icon.getIntrinsicHeight() : 0;
+			final int labelHeight = label != null ? label.getHeight() : 0;
+			final int gap = icon != null && label != null ? padding >> 1 : 0;
+			int top = rect.centerY() - ((iconHeight + gap + labelHeight) >> 1);
+			if( icon != null ) {
+				canvas.save();
+				canvas.translate(rect.centerX() - (icon.getIntrinsicWidth() >> 1), top);
+				icon.draw(canvas);
+				canvas.restore();
+				top += iconHeight + gap;
+			}
+			if( label != null ) {
+				canvas.save();
+				canvas.translate(rect.left + padding, top);
+				label.draw(canvas);
+				canvas.restore();
+			}
+		}
+	}
+	
+	/**
+	 * 点击露出区域时分发给对应的操作
+	 * @return true 点击了某个操作
+	 */
+	private boolean performSwipeActionClick(float x, float y) {
+		if( mDragPane == null || isClosed() || isPointInDragPane(x, y) ) {
+			return false;
+		}
+		SwipeAction[] actions;
+		Rect[] bounds;
+		if( mDragPane.getLeft() > 0 ) {
+			actions = mLeftSwipeActions;
+			bounds = mLeftSwipeActionBounds;
+		} else {
+			actions = mRightSwipeActions;
+			bounds = mRightSwipeActionBounds;
+		}
+		if( actions == null ) {
+			return false;
+		}
+		for( int i=0; i<actions.length; i++ ) {
+			if( bounds[i].contains((int) x, (int) y) ) {
+				playSoundEffect(SoundEffectConstants.CLICK);
+				if( mSwipeActionClickListener != null ) {
+					mSwipeActionClickListener.onSwipeActionClick(this, actions[i]);
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * 设置释放资源的内存级别，系统回调 {@link ComponentCallbacks2#onTrimMemory(int)} 的级别
+	 * 不低于这个值时，关闭状态或者不可见的布局会释放可以重建的资源，下次触摸时再重新创建。
+	 * 默认为 {@link ComponentCallbacks2#TRIM_MEMORY_BACKGROUND}，仅在 API 14 以上有效
+	 * @param level 内存级别
+	 */
+	public void setTrimMemoryLevel(int level) {
+		mTrimMemoryLevel = level;
+	}
+	
+	/**
+	 * 释放可以重建的资源
+	 * @param level 内存级别
+	 * @return true 已经释放, false 正在触摸、拖动或者处于打开状态并且可见，不释放
+	 */
+	boolean trimMemory(int level) {
+		if( level < mTrimMemoryLevel ) {
+			return false;
+		}
+		// 手指按下后到超过 touch slop 之前 ViewDragHelper 仍然是 STATE_IDLE，
+		// 这时替换 ViewDragHelper 会使后续的 ACTION_MOVE 读取到不存在的触摸记录
+		if( mInGesture ) {
+			return false;
+		}
+		if( mDragHelper != null && mDragHelper.getViewDragState() != ViewDragHelper.STATE_IDLE ) {
+			return false;
+		}
+		if( !isClosed() && isShown() && getWindowVisibility() == VISIBLE ) {
+			return false;
+		}
+		onReleaseCaches();
+		mTrimmed = true;
+		return true;
+	}
+	
+	/**
+	 * 内存不足时释放可以重建的资源，子类重写时需要调用 super
+	 */
+	protected void onReleaseCaches() {
+		if( mDragHelper != null ) {
+			// 回收 VelocityTracker
+			mDragHelper.cancel();
+			mDragHelper = null;
+		}
+		mGestureDetector = null;
+		releaseSwipeActionLabels();
+		mWarmedUp = false;
+	}
+	
+	@TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+	private void registerTrimMemoryCallbacks() {
+		if( mTrimMemoryCallbacks == null ) {
+			mTrimMemoryCallbacks = new TrimMemoryCallbacks(this);
+		}
+		getContext().getApplicationContext().registerComponentCallbacks((ComponentCallbacks2) mTrimMemoryCallbacks);
+	}
+	
+	@TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+	private void unregisterTrimMemoryCallbacks() {
+		if( mTrimMemoryCallbacks != null ) {
+			getContext().getApplicationContext().unregisterComponentCallbacks((ComponentCallbacks2) mTrimMemoryCallbacks);
+		}
+	}
+	
+	/**
+	 * 只在 attach 期间注册，不会泄露布局
+	 */
+	@TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+	static class TrimMemoryCallbacks implements ComponentCallbacks2 {
+		
+		private final DragPaneLayout mLayout;
+		
+		TrimMemoryCallbacks(DragPaneLayout layout) {
+			mLayout = layout;
+		}
+
+		@Override
+		public void onTrimMemory(int level) {
+			mLayout.trimMemory(level);
+		}
+
+		@Override
+		public void onLowMemory() {
+			mLayout.trimMemory(TRIM_MEMORY_COMPLETE);
+		}
+		
+		@Override
+		public void onConfigurationChanged(Configuration newConfig) {
 		}
 		
 	}
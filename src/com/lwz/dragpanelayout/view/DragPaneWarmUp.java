@@ -0,0 +1,173 @@
+/* Copyright 2015 Liu Wenzhu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lwz.dragpanelayout.view;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+
+/**
+ * 在主线程空闲时预热列表中的 {@link DragPaneLayout}，消除新行第一次拖动时的卡顿。
+ * 每一帧只在给定的时间预算内工作，超出预算的行留到下一帧再处理；
+ * 所有行都预热完成后停止监听空闲，直到列表滚动或重新绑定后再次布局。
+ * <p>
+ * 也可以在 RecyclerView 的预取(prefetch)阶段直接调用 {@link #warmUp(ViewGroup, long)}
+ * 或者 {@link DragPaneLayout#warmUp()}。
+ * @author Liu Wenzhu<lwz0316@gmail.com>
+ */
+public class DragPaneWarmUp implements MessageQueue.IdleHandler, ViewTreeObserver.OnGlobalLayoutListener {
+	
+	/** 默认每帧的预热时间预算 */
+	private static final long DEFAULT_FRAME_BUDGET_NANOS = 4 * 1000 * 1000L;
+	/** 按 60fps 计算的一帧时长 */
+	private static final long FRAME_INTERVAL_NANOS = 16 * 1000 * 1000L;
+	
+	private final ViewGroup mParent;
+	private long mFrameBudgetNanos = DEFAULT_FRAME_BUDGET_NANOS;
+	private boolean mAttached;
+	/** 空闲监听是否已经加入消息队列 */
+	private boolean mIdleQueued;
+	/** 当前帧的开始时间和已经使用的预算 */
+	private long mFrameStartNanos;
+	private long mFrameSpentNanos;
+	
+	private final Runnable mScheduleIdle = new Runnable() {
+		
+		@Override
+		public void run() {
+			scheduleIdle();
+		}
+	};
+	
+	/**
+	 * @param parent 包含 {@link DragPaneLayout} 行的列表，如 ListView、RecyclerView
+	 */
+	public DragPaneWarmUp(ViewGroup parent) {
+		mParent = parent;
+	}
+	
+	/**
+	 * 设置每帧的预热时间预算
+	 * @param budgetNanos 纳秒
+	 */
+	public void setFrameBudget(long budgetNanos) {
+		mFrameBudgetNanos = budgetNanos;
+	}
+	
+	/**
+	 * 开始在主线程空闲时预热，需要在主线程调用
+	 */
+	public void attach() {
+		if( !mAttached ) {
+			mAttached = true;
+			mParent.getViewTreeObserver().addOnGlobalLayoutListener(this);
+			scheduleIdle();
+		}
+	}
+	
+	/**
+	 * 停止预热，需要在主线程调用
+	 */
+	@SuppressWarnings("deprecation")
+	public void detach() {
+		if( mAttached ) {
+			mAttached = false;
+			mParent.getViewTreeObserver().removeGlobalOnLayoutListener(this);
+			mParent.removeCallbacks(mScheduleIdle);
+			if( mIdleQueued ) {
+				Looper.myQueue().removeIdleHandler(this);
+				mIdleQueued = false;
+			}
+		}
+	}
+	
+	@Override
+	public void onGlobalLayout() {
+		// 列表滚动或者重新绑定后可能出现新的行
+		scheduleIdle();
+	}
+	
+	private void scheduleIdle() {
+		if( mAttached && !mIdleQueued ) {
+			Looper.myQueue().addIdleHandler(this);
+			mIdleQueued = true;
+		}
+	}
+	
+	@Override
+	public boolean queueIdle() {
+		final long now = System.nanoTime();
+		if( now - mFrameStartNanos >= FRAME_INTERVAL_NANOS ) {
+			mFrameStartNanos = now;
+			mFrameSpentNanos = 0;
+		}
+		final long budget = mFrameBudgetNanos - mFrameSpentNanos;
+		if( budget <= 0 ) {
+			// 一帧中可能多次空闲，本帧的预算用完后等到下一帧再继续
+			mIdleQueued = false;
+			long delayNanos = mFrameStartNanos + FRAME_INTERVAL_NANOS - now;
+			mParent.postDelayed(mScheduleIdle, Math.max(1, delayNanos / (1000 * 1000)));
+			return false;
+		}
+		final int size = mParent.getChildCount();
+		final int next = warmUpChildren(mParent, now + budget);
+		mFrameSpentNanos += System.nanoTime() - now;
+		if( next >= size ) {
+			// 所有行都已经预热，等下一次布局再开始
+			mIdleQueued = false;
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * 在时间预算内预热 parent 的直接子 View 中的 {@link DragPaneLayout}
+	 * @param parent 列表
+	 * @param budgetNanos 时间预算，纳秒
+	 * @return 本次预热的个数
+	 */
+	public static int warmUp(ViewGroup parent, long budgetNanos) {
+		final long deadline = System.nanoTime() + budgetNanos;
+		int count = 0;
+		for( int i=0, size=parent.getChildCount(); i<size; i++ ) {
+			View child = parent.getChildAt(i);
+			if( child instanceof DragPaneLayout && ((DragPaneLayout) child).warmUp() ) {
+				count++;
+				if( System.nanoTime() >= deadline ) {
+					break;
+				}
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * 依次预热，直到超过 deadline。已经预热过的行会直接跳过
+	 * @return 下一个还没有检查的子 View 的位置，等于子 View 个数时表示已经全部检查
+	 */
+	private static int warmUpChildren(ViewGroup parent, long deadline) {
+		for( int i=0, size=parent.getChildCount(); i<size; i++ ) {
+			View child = parent.getChildAt(i);
+			if( child instanceof DragPaneLayout && ((DragPaneLayout) child).warmUp()
+					&& System.nanoTime() >= deadline ) {
+				return i + 1;
+			}
+		}
+		return parent.getChildCount();
+	}
+	
+}
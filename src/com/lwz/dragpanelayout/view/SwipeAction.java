@@ -0,0 +1,79 @@
+/* Copyright 2015 Liu Wenzhu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.lwz.dragpanelayout.view;
+
+import android.graphics.drawable.Drawable;
+
+/**
+ * 由 {@link DragPaneLayout} 直接绘制在露出区域上的操作按钮，不需要为它创建子 View。
+ * 同一个 SwipeAction 可以被列表中的多行共用。
+ * @author Liu Wenzhu<lwz0316@gmail.com>
+ * @see DragPaneLayout#setLeftSwipeActions(SwipeAction...)
+ * @see DragPaneLayout#setRightSwipeActions(SwipeAction...)
+ */
+public class SwipeAction {
+	
+	private final int mId;
+	private final int mBackgroundColor;
+	private final Drawable mIcon;
+	private final CharSequence mLabel;
+	/** 宽度，0 表示平分拖动范围 */
+	private int mWidth;
+	
+	/**
+	 * @param id 操作的 id，点击时用来区分操作
+	 * @param backgroundColor 背景颜色
+	 * @param icon 图标，可以为 null
+	 * @param label 文字，可以为 null
+	 */
+	public SwipeAction(int id, int backgroundColor, Drawable icon, CharSequence label) {
+		mId = id;
+		mBackgroundColor = backgroundColor;
+		mIcon = icon;
+		mLabel = label;
+		if( icon != null ) {
+			icon.setBounds(0, 0, icon.getIntrinsicWidth(), icon.getIntrinsicHeight());
+		}
+	}
+	
+	public int getId() {
+		return mId;
+	}
+	
+	public int getBackgroundColor() {
+		return mBackgroundColor;
+	}
+	
+	public Drawable getIcon() {
+		return mIcon;
+	}
+	
+	public CharSequence getLabel() {
+		return mLabel;
+	}
+	
+	/**
+	 * 设置宽度
+	 * @param width 像素，0 表示和同一侧的其他操作平分拖动范围
+	 */
+	public void setWidth(int width) {
+		mWidth = width;
+	}
+	
+	public int getWidth() {
+		return mWidth;
+	}
+	
+}
@@ -15,8 +15,14 @@
 package com.lwz.dragpanelayout.view;
 
 import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.PorterDuff;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.util.AttributeSet;
 import android.view.View;
@@ -36,6 +42,23 @@ public class TransformationDragPaneLayout extends DragPaneLayout implements OnPa
 	private OnPaneStateChangedListener mPaneStateChangedListener;
 	
 	private float mDragPaneScale = 0.8f;
+	/** 上一帧 SecondaryPane 变换后的范围 */
+	private final Rect mLastSecondaryPaneBounds = new Rect();
+	
+	private static final String ANDROID_NAMESPACE = "http://schemas.android.com/apk/res/android";
+	/** attach 到窗口的布局个数，为 0 时清空 {@link BackgroundBitmapPool} */
+	private static int sAttachedCount;
+	
+	/**
+	 * 图片背景的资源 id，布局大小确定后按布局大小重新解码，代替原始大小的背景。
+	 * 父类构造方法中会调用 {@link #setBackgroundDrawable(Drawable)}，所以以下字段不能有初始值
+	 */
+	private int mBackgroundResId;
+	/** 按布局大小解码的背景，是当前背景 BitmapDrawable 中的 Bitmap */
+	private Bitmap mScaledBackground;
+	private boolean mApplyingScaledBackground;
+	/** 当前背景遮罩的颜色，在 {@link #onDraw(Canvas)} 中直接叠加在背景上 */
+	private int mBackgroundDimColor = Color.TRANSPARENT;
 	
 	public TransformationDragPaneLayout(Context context) {
 		this(context, null);
@@ -49,6 +72,9 @@ public class TransformationDragPaneLayout extends DragPaneLayout implements OnPa
 		super(context, attrs, defStyleAttr);
 		
 		super.setOnPaneStateChangedListener(this);
+		if( attrs != null && getBackground() instanceof BitmapDrawable ) {
+			mBackgroundResId = attrs.getAttributeResourceValue(ANDROID_NAMESPACE, "background", 0);
+		}
 	}
 	
 	@Override
@@ -62,7 +88,185 @@ public class TransformationDragPaneLayout extends DragPaneLayout implements OnPa
 	}
 	
 	public void setSecondaryPane(View pane) {
-		mSecondaryPane = pane;
+		if( mSecondaryPane != pane ) {
+			mSecondaryPane = pane;
+			mWarmedUp = false;
+		}
+	}
+	
+	@Override
+	protected void onWarmUp() {
+		super.onWarmUp();
+		// 提前测量 SecondaryPane，transSecondaryPane() 需要用到它的宽度
+		if( mSecondaryPane != null && getWidth() > 0
+				&& (mSecondaryPane.isLayoutRequested() || mSecondaryPane.getMeasuredWidth() == 0) ) {
+			measureChildWithMargins(mSecondaryPane, 
+					MeasureSpec.makeMeasureSpec(getWidth(), MeasureSpec.EXACTLY), 0, 
+					MeasureSpec.makeMeasureSpec(getHeight(), MeasureSpec.EXACTLY), 0);
+		}
+		// 按当前偏移量应用一次变换，提前创建变换属性所需的对象
+		float offset = getDragOffset();
+		if( mDragPane != null ) {
+			transDragPane(offset);
+		}
+		if( mSecondaryPane != null ) {
+			transSecondaryPane(offset);
+		}
+		invalidateDragPaneTransform();
+	}
+	
+	@Override
+	protected boolean getDragFrameDirtyRect(Rect outDirty) {
+		// 背景的遮罩覆盖整个布局，只能全部重绘
+		if( getBackground() != null || !super.getDragFrameDirtyRect(outDirty) ) {
+			return false;
+		}
+		if( mSecondaryPane != null ) {
+			outDirty.union(mLastSecondaryPaneBounds);
+			getTransformedBounds(mSecondaryPane, mLastSecondaryPaneBounds);
+			outDirty.union(mLastSecondaryPaneBounds);
+		}
+		return true;
+	}
+	
+	@Override
+	protected void onReleaseCaches() {
+		super.onReleaseCaches();
+		// 池中只有已经不再显示的 Bitmap
+		BackgroundBitmapPool.clear();
+	}
+	
+	@SuppressWarnings("deprecation")
+	@Override
+	public void setBackgroundDrawable(Drawable background) {
+		super.setBackgroundDrawable(background);
+		if( !mApplyingScaledBackground ) {
+			// 使用者更换了背景，不再按布局大小解码
+			mBackgroundResId = 0;
+			releaseScaledBackground();
+		}
+	}
+	
+	@Override
+	public void setBackgroundResource(int resid) {
+		super.setBackgroundResource(resid);
+		mBackgroundResId = getBackground() instanceof BitmapDrawable ? resid : 0;
+		updateScaledBackground(getWidth(), getHeight());
+	}
+	
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		updateScaledBackground(w, h);
+	}
+	
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		sAttachedCount++;
+	}
+	
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		if( --sAttachedCount == 0 ) {
+			BackgroundBitmapPool.clear();
+		}
+	}
+	
+	/**
+	 * 按布局大小重新解码图片背景，只在背景或者布局大小改变时执行一次。
+	 * 拖动时绘制的是和布局一样大的 Bitmap，不需要再缩放原始图片
+	 */
+	private void updateScaledBackground(int width, int height) {
+		if( mBackgroundResId == 0 || width <= 0 || height <= 0 ) {
+			return;
+		}
+		if( mScaledBackground != null 
+				&& mScaledBackground.getWidth() == width && mScaledBackground.getHeight() == height ) {
+			return;
+		}
+		Bitmap bitmap = decodeBackground(mBackgroundResId, width, height);
+		if( bitmap == null ) {
+			// 不是普通图片，例如 .9 图，保持原来的背景
+			mBackgroundResId = 0;
+			return;
+		}
+		Bitmap old = mScaledBackground;
+		mScaledBackground = bitmap;
+		// 保持原背景的固有大小，最小尺寸不变，onSizeChanged 中替换背景不会再触发 requestLayout
+		Drawable current = getBackground();
+		mApplyingScaledBackground = true;
+		setBackgroundDrawable(new ScaledBackgroundDrawable(getResources(), bitmap, 
+				current.getIntrinsicWidth(), current.getIntrinsicHeight()));
+		mApplyingScaledBackground = false;
+		// 旧的 Bitmap 已经不再作为背景显示
+		if( old != null ) {
+			BackgroundBitmapPool.release(old);
+		}
+	}
+	
+	/**
+	 * 按目标大小采样解码，再缩放到目标大小
+	 * @return 解码失败或者是 .9 图时返回 null
+	 */
+	private Bitmap decodeBackground(int resId, int width, int height) {
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeResource(getResources(), resId, options);
+		if( options.outWidth <= 0 || options.outHeight <= 0 ) {
+			return null;
+		}
+		int sampleSize = 1;
+		while( options.outWidth / (sampleSize << 1) >= width 
+				&& options.outHeight / (sampleSize << 1) >= height ) {
+			sampleSize <<= 1;
+		}
+		options.inJustDecodeBounds = false;
+		options.inSampleSize = sampleSize;
+		options.inScaled = false;
+		Bitmap decoded = BitmapFactory.decodeResource(getResources(), resId, options);
+		if( decoded == null ) {
+			return null;
+		}
+		if( decoded.getNinePatchChunk() != null ) {
+			decoded.recycle();
+			return null;
+		}
+		if( decoded.getWidth() == width && decoded.getHeight() == height ) {
+			return decoded;
+		}
+		Bitmap scaled = BackgroundBitmapPool.acquire(width, height);
+		new Canvas(scaled).drawBitmap(decoded, null, new Rect(0, 0, width, height), 
+				new Paint(Paint.FILTER_BITMAP_FLAG));
+		decoded.recycle();
+		return scaled;
+	}
+	
+	private void releaseScaledBackground() {
+		if( mScaledBackground != null ) {
+			BackgroundBitmapPool.release(mScaledBackground);
+			mScaledBackground = null;
+		}
+	}
+	
+	/**
+	 * 设置背景上叠加的遮罩颜色，只记录颜色并重绘，不创建新的对象
+	 */
+	private void setBackgroundDim(int color) {
+		if( mBackgroundDimColor != color ) {
+			mBackgroundDimColor = color;
+			invalidate();
+		}
+	}
+	
+	@Override
+	protected void onDraw(Canvas canvas) {
+		super.onDraw(canvas);
+		// 背景之后、子 View 之前绘制，效果等同于在背景上叠加遮罩
+		if( getBackground() != null && Color.alpha(mBackgroundDimColor) != 0 ) {
+			canvas.drawColor(mBackgroundDimColor);
+		}
 	}
 	
 	@Override
@@ -116,10 +320,7 @@ public class TransformationDragPaneLayout extends DragPaneLayout implements OnPa
 	
 	private void transBackground(float offset) {
 		float absOffset = Math.abs(offset);
-		Drawable background = getBackground();
-		if( background != null ) {
-			background.setColorFilter(evaluate(absOffset, Color.argb(0x99, 0, 0, 0), Color.TRANSPARENT), PorterDuff.Mode.SRC_OVER);
-		}
+		setBackgroundDim(evaluate(absOffset, Color.argb(0x99, 0, 0, 0), Color.TRANSPARENT));
 	}
 	
 	private Integer evaluate(float fraction, Object startValue, Integer endValue) {
@@ -139,4 +340,29 @@ public class TransformationDragPaneLayout extends DragPaneLayout implements OnPa
                 | (int) ((startB + (int) (fraction * (endB - startB))));
     }
 
+	/**
+	 * 按布局大小解码的背景，固有大小仍然使用原背景的大小
+	 */
+	private static class ScaledBackgroundDrawable extends BitmapDrawable {
+		
+		private final int mIntrinsicWidth;
+		private final int mIntrinsicHeight;
+		
+		ScaledBackgroundDrawable(Resources res, Bitmap bitmap, int intrinsicWidth, int intrinsicHeight) {
+			super(res, bitmap);
+			mIntrinsicWidth = intrinsicWidth;
+			mIntrinsicHeight = intrinsicHeight;
+		}
+		
+		@Override
+		public int getIntrinsicWidth() {
+			return mIntrinsicWidth;
+		}
+		
+		@Override
+		public int getIntrinsicHeight() {
+			return mIntrinsicHeight;
+		}
+	}
+	
 }